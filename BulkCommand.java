@@ -0,0 +1,73 @@
+package net.corda.training.client;
+
+import net.corda.core.contracts.UniqueIdentifier;
+import net.corda.core.flows.FlowLogic;
+import net.corda.core.identity.Party;
+import net.corda.training.flow.IOUIssueFlow;
+import net.corda.training.flow.IOUTransferFlow;
+import net.corda.training.flow.MoveFlow;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * This is one request submitted through the [IOUBulkClient].
+ * A command can be started over RPC with [getFlowClass] and [getArguments],
+ * or on a node in process with [toFlow].
+ */
+public final class BulkCommand {
+
+    public enum Kind { ISSUE, TRANSFER, MOVE }
+
+    private final Kind kind;
+    private final Class<? extends FlowLogic<?>> flowClass;
+    private final Object[] arguments;
+    private final Supplier<FlowLogic<?>> flow;
+
+    private BulkCommand(Kind kind, Class<? extends FlowLogic<?>> flowClass, Object[] arguments, Supplier<FlowLogic<?>> flow) {
+        this.kind = kind;
+        this.flowClass = flowClass;
+        this.arguments = arguments;
+        this.flow = flow;
+    }
+
+    /**
+     * Issues an IOU. The request id may be null; when it is given, retrying the command is idempotent.
+     */
+    public static BulkCommand issue(String currency, long amount, Party lender, Party borrower, Party addressStateIssuer, String requestId) {
+        return new BulkCommand(Kind.ISSUE, IOUIssueFlow.InitiatorFlow.class,
+                new Object[]{currency, amount, lender, borrower, addressStateIssuer, requestId},
+                () -> new IOUIssueFlow.InitiatorFlow(currency, amount, lender, borrower, addressStateIssuer, requestId));
+    }
+
+    public static BulkCommand transfer(UniqueIdentifier stateLinearId, Party newLender, Party addressStateIssuer) {
+        return new BulkCommand(Kind.TRANSFER, IOUTransferFlow.InitiatorFlow.class,
+                new Object[]{stateLinearId, newLender, addressStateIssuer},
+                () -> new IOUTransferFlow.InitiatorFlow(stateLinearId, newLender, addressStateIssuer));
+    }
+
+    /**
+     * Moves the AddressState of the node. Coalesced moves share one transaction per window.
+     */
+    public static BulkCommand move(String address, boolean coalesced) {
+        if (coalesced) {
+            return new BulkCommand(Kind.MOVE, MoveFlow.Coalescing.class, new Object[]{address},
+                    () -> new MoveFlow.Coalescing(address));
+        }
+        return new BulkCommand(Kind.MOVE, MoveFlow.Initiator.class, new Object[]{address},
+                () -> new MoveFlow.Initiator(address));
+    }
+
+    public Kind getKind() { return kind; }
+
+    public Class<? extends FlowLogic<?>> getFlowClass() { return flowClass; }
+
+    public Object[] getArguments() { return arguments.clone(); }
+
+    public FlowLogic<?> toFlow() { return flow.get(); }
+
+    @Override
+    public String toString() {
+        return kind + " " + flowClass.getSimpleName() + Arrays.toString(arguments);
+    }
+}
@@ -0,0 +1,64 @@
+package net.corda.training.client;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This is a snapshot of the [IOUBulkClient] counters.
+ * - [errors] counts the failed flows per exception class name.
+ * - [elapsedNanos] runs from the first submission to the last completion.
+ */
+public final class BulkStats {
+
+    private final long submitted;
+    private final long succeeded;
+    private final long failed;
+    private final long inFlight;
+    private final long elapsedNanos;
+    private final long meanLatencyNanos;
+    private final long maxLatencyNanos;
+    private final Map<String, Long> errors;
+
+    BulkStats(long submitted, long succeeded, long failed, long inFlight, long elapsedNanos,
+              long meanLatencyNanos, long maxLatencyNanos, Map<String, Long> errors) {
+        this.submitted = submitted;
+        this.succeeded = succeeded;
+        this.failed = failed;
+        this.inFlight = inFlight;
+        this.elapsedNanos = elapsedNanos;
+        this.meanLatencyNanos = meanLatencyNanos;
+        this.maxLatencyNanos = maxLatencyNanos;
+        this.errors = Collections.unmodifiableMap(errors);
+    }
+
+    public long getSubmitted() { return submitted; }
+
+    public long getSucceeded() { return succeeded; }
+
+    public long getFailed() { return failed; }
+
+    public long getInFlight() { return inFlight; }
+
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    public long getMeanLatencyNanos() { return meanLatencyNanos; }
+
+    public long getMaxLatencyNanos() { return maxLatencyNanos; }
+
+    public Map<String, Long> getErrors() { return errors; }
+
+    /**
+     * Returns the successful flows per second.
+     */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : succeeded * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("submitted=%d succeeded=%d failed=%d inFlight=%d throughput=%.2f/s meanLatency=%dms maxLatency=%dms errors=%s",
+                submitted, succeeded, failed, inFlight, getThroughput(),
+                TimeUnit.NANOSECONDS.toMillis(meanLatencyNanos), TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos), errors);
+    }
+}
@@ -0,0 +1,189 @@
+package net.corda.training.client;
+
+import net.corda.core.flows.NotaryError;
+import net.corda.core.flows.NotaryException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+/**
+ * This is the load harness which measures how IOU issuance behaves while the referenced AddressState is moved.
+ * - Every run submits a fixed number of commands through an [IOUBulkClient]. The share of Move commands and the
+ *   number of flows in flight are swept over the given values.
+ * - The order of Issue and Move commands is drawn from a seeded Random, so every run of a scenario submits
+ *   the same sequence.
+ * - Each run records the notary conflicts, the successful transactions per second and the latency percentiles.
+ * - [check] fails when a run has a larger share of conflicts than the given limit. Throughput depends on the
+ *   machine, so it is recorded but not checked.
+ * To run it on a MockNetwork, create the network with threadPerNode enabled and submit every command to the
+ * AddressState issuer, which must also be the borrower, because IOUIssueFlow only references an AddressState
+ * in the borrower's vault, e.g. `command -> issuerNode.startFlow(command.toFlow()).toCompletableFuture()`.
+ * ContentionSweepTest runs it this way.
+ */
+public class ContentionSweep {
+
+    private final FlowSubmitter submitter;
+    private final IntFunction<BulkCommand> issueCommand;
+    private final IntFunction<BulkCommand> moveCommand;
+    private final long seed;
+
+    /**
+     * @param issueCommand creates the n-th Issue command of a run.
+     * @param moveCommand creates the n-th Move command of a run. Every Move must use a new address.
+     */
+    public ContentionSweep(FlowSubmitter submitter, IntFunction<BulkCommand> issueCommand,
+                           IntFunction<BulkCommand> moveCommand, long seed) {
+        this.submitter = submitter;
+        this.issueCommand = issueCommand;
+        this.moveCommand = moveCommand;
+        this.seed = seed;
+    }
+
+    /**
+     * Runs every combination of Move share and concurrency, one after the other.
+     */
+    public List<Result> sweep(double[] moveShares, int[] concurrencies, int operationsPerRun) throws InterruptedException {
+        List<Result> results = new ArrayList<>();
+        for (double moveShare : moveShares) {
+            for (int concurrency : concurrencies) {
+                results.add(run(moveShare, concurrency, operationsPerRun));
+            }
+        }
+        return results;
+    }
+
+    public Result run(double moveShare, int concurrency, int operations) throws InterruptedException {
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        AtomicLong conflicts = new AtomicLong(0);
+        IOUBulkClient client = new IOUBulkClient(command -> {
+            long startedAt = System.nanoTime();
+            CompletableFuture<?> started = submitter.submit(command);
+            return started.whenComplete((value, error) -> {
+                latencies.add(System.nanoTime() - startedAt);
+                if (error != null && isConflict(error)) {
+                    conflicts.incrementAndGet();
+                }
+            });
+        }, concurrency);
+
+        Random random = new Random(seed ^ Double.doubleToLongBits(moveShare) ^ ((long) concurrency << 32));
+        int issues = 0;
+        int moves = 0;
+        for (int i = 0; i < operations; i++) {
+            client.submit(random.nextDouble() < moveShare ? moveCommand.apply(moves++) : issueCommand.apply(issues++));
+        }
+        client.awaitIdle();
+
+        List<Long> sorted;
+        synchronized (latencies) {
+            sorted = new ArrayList<>(latencies);
+        }
+        Collections.sort(sorted);
+        return new Result(moveShare, concurrency, client.getStats(), conflicts.get(),
+                percentile(sorted, 0.50), percentile(sorted, 0.95), percentile(sorted, 0.99));
+    }
+
+    /**
+     * Throws when a run has a larger share of notary conflicts than allowed.
+     */
+    public static void check(List<Result> results, double maxConflictShare) {
+        List<String> failures = new ArrayList<>();
+        for (Result result : results) {
+            if (result.getConflictShare() > maxConflictShare) {
+                failures.add(result + ": conflict share above " + maxConflictShare);
+            }
+        }
+        if (!failures.isEmpty()) {
+            throw new IllegalStateException("Contention limits exceeded:\n" + String.join("\n", failures));
+        }
+    }
+
+    public static void writeCsv(List<Result> results, Path file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("moveShare,concurrency,submitted,succeeded,failed,conflicts,throughputPerSecond,p50Millis,p95Millis,p99Millis");
+        for (Result result : results) {
+            lines.add(String.format("%.2f,%d,%d,%d,%d,%d,%.2f,%d,%d,%d",
+                    result.getMoveShare(), result.getConcurrency(),
+                    result.getStats().getSubmitted(), result.getStats().getSucceeded(), result.getStats().getFailed(),
+                    result.getConflicts(), result.getStats().getThroughput(),
+                    TimeUnit.NANOSECONDS.toMillis(result.getP50Nanos()),
+                    TimeUnit.NANOSECONDS.toMillis(result.getP95Nanos()),
+                    TimeUnit.NANOSECONDS.toMillis(result.getP99Nanos())));
+        }
+        Files.write(file, lines, StandardCharsets.UTF_8);
+    }
+
+    private static boolean isConflict(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof NotaryException && ((NotaryException) cause).getError() instanceof NotaryError.Conflict) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long percentile(List<Long> sorted, double percentile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.size()) - 1;
+        return sorted.get(Math.max(index, 0));
+    }
+
+    /**
+     * The measurements of one run.
+     */
+    public static final class Result {
+        private final double moveShare;
+        private final int concurrency;
+        private final BulkStats stats;
+        private final long conflicts;
+        private final long p50Nanos;
+        private final long p95Nanos;
+        private final long p99Nanos;
+
+        private Result(double moveShare, int concurrency, BulkStats stats, long conflicts,
+                       long p50Nanos, long p95Nanos, long p99Nanos) {
+            this.moveShare = moveShare;
+            this.concurrency = concurrency;
+            this.stats = stats;
+            this.conflicts = conflicts;
+            this.p50Nanos = p50Nanos;
+            this.p95Nanos = p95Nanos;
+            this.p99Nanos = p99Nanos;
+        }
+
+        public double getMoveShare() { return moveShare; }
+
+        public int getConcurrency() { return concurrency; }
+
+        public BulkStats getStats() { return stats; }
+
+        public long getConflicts() { return conflicts; }
+
+        public double getConflictShare() {
+            return stats.getSubmitted() == 0 ? 0 : (double) conflicts / stats.getSubmitted();
+        }
+
+        public long getP50Nanos() { return p50Nanos; }
+
+        public long getP95Nanos() { return p95Nanos; }
+
+        public long getP99Nanos() { return p99Nanos; }
+
+        @Override
+        public String toString() {
+            return String.format("moveShare=%.2f concurrency=%d conflicts=%d %s", moveShare, concurrency, conflicts, stats);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package net.corda.training.client;
+
+import com.google.common.collect.ImmutableList;
+import net.corda.core.identity.Party;
+import net.corda.testing.node.MockNetwork;
+import net.corda.testing.node.MockNetworkParameters;
+import net.corda.testing.node.MockNodeParameters;
+import net.corda.testing.node.StartedMockNode;
+import net.corda.testing.node.TestCordapp;
+import net.corda.training.flow.PublishFlow;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This runs a small ContentionSweep on a MockNetwork.
+ * The borrower publishes the AddressState, so its IOUs reference the same state its Moves consume.
+ * Throughput depends on the machine, so only the conflict counts are asserted.
+ */
+public class ContentionSweepTest {
+
+    private static final long SEED = 42;
+
+    private MockNetwork network;
+    private StartedMockNode borrower;
+    private StartedMockNode lender;
+
+    @Before
+    public void setup() throws Exception {
+        // The IOUBulkClient blocks on its futures, so every node must run its flows on its own thread.
+        network = new MockNetwork(new MockNetworkParameters()
+                .withCordappsForAllNodes(ImmutableList.of(
+                        TestCordapp.findCordapp("net.corda.training.contracts"),
+                        TestCordapp.findCordapp("net.corda.training.flow")))
+                .withThreadPerNode(true));
+        borrower = network.createNode(new MockNodeParameters());
+        lender = network.createNode(new MockNodeParameters());
+        borrower.startFlow(new PublishFlow.Initiator(identity(borrower), "address-0")).get();
+    }
+
+    @After
+    public void tearDown() {
+        network.stopNodes();
+    }
+
+    /**
+     * Without Moves the referenced AddressState is never consumed, so no Issue can conflict.
+     */
+    @Test
+    public void issuesWithoutMovesHaveNoConflicts() throws Exception {
+        ContentionSweep.Result result = sweep().run(0.0, 4, 20);
+
+        assertEquals(20, result.getStats().getSubmitted());
+        assertEquals(0, result.getConflicts());
+        assertEquals(20, result.getStats().getSucceeded());
+    }
+
+    /**
+     * Moves consume the AddressState while Issues in flight still reference it, so the notary rejects some of them.
+     */
+    @Test
+    public void movesOverlappingIssuesCauseConflicts() throws Exception {
+        List<ContentionSweep.Result> results = sweep().sweep(new double[]{0.0, 0.5}, new int[]{8}, 40);
+
+        assertEquals(2, results.size());
+        assertEquals(0, results.get(0).getConflicts());
+        assertTrue(results.get(1).getConflicts() > 0);
+        for (ContentionSweep.Result result : results) {
+            assertEquals(result.getStats().getSubmitted(),
+                    result.getStats().getSucceeded() + result.getStats().getFailed());
+        }
+    }
+
+    private ContentionSweep sweep() {
+        Party borrowerParty = identity(borrower);
+        Party lenderParty = identity(lender);
+        return new ContentionSweep(
+                command -> borrower.startFlow(command.toFlow()).toCompletableFuture(),
+                i -> BulkCommand.issue("USD", 10, lenderParty, borrowerParty, borrowerParty, null),
+                i -> BulkCommand.move("address-" + (i + 1), false),
+                SEED);
+    }
+
+    private static Party identity(StartedMockNode node) {
+        return node.getInfo().getLegalIdentities().get(0);
+    }
+}
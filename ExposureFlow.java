@@ -0,0 +1,64 @@
+package net.corda.training.flow;
+
+import co.paralleluniverse.fibers.Suspendable;
+import net.corda.core.contracts.Amount;
+import net.corda.core.flows.FlowException;
+import net.corda.core.flows.FlowLogic;
+import net.corda.core.flows.StartableByRPC;
+import net.corda.core.identity.Party;
+import net.corda.training.services.ExposureService;
+
+import java.util.Currency;
+import java.util.Map;
+
+/**
+ * This is the flow which returns the outstanding exposure kept by the [ExposureService].
+ * No vault query is run except for the one-off rebuild after node startup.
+ */
+public class ExposureFlow {
+
+    /**
+     * Returns how much the borrower owes the lender in the given currency.
+     */
+    @StartableByRPC
+    public static class ByCurrency extends FlowLogic<Amount<Currency>> {
+
+        private final Party lender;
+        private final Party borrower;
+        private final String currency;
+
+        public ByCurrency(Party lender, Party borrower, String currency) {
+            this.lender = lender;
+            this.borrower = borrower;
+            this.currency = currency;
+        }
+
+        @Suspendable
+        @Override
+        public Amount<Currency> call() throws FlowException {
+            return getServiceHub().cordaService(ExposureService.class)
+                    .outstanding(lender, borrower, Currency.getInstance(currency));
+        }
+    }
+
+    /**
+     * Returns how much the borrower owes the lender in each currency.
+     */
+    @StartableByRPC
+    public static class AllCurrencies extends FlowLogic<Map<Currency, Amount<Currency>>> {
+
+        private final Party lender;
+        private final Party borrower;
+
+        public AllCurrencies(Party lender, Party borrower) {
+            this.lender = lender;
+            this.borrower = borrower;
+        }
+
+        @Suspendable
+        @Override
+        public Map<Currency, Amount<Currency>> call() throws FlowException {
+            return getServiceHub().cordaService(ExposureService.class).outstanding(lender, borrower);
+        }
+    }
+}
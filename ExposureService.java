@@ -0,0 +1,136 @@
+package net.corda.training.services;
+
+import net.corda.core.contracts.Amount;
+import net.corda.core.contracts.ContractState;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.contracts.StateRef;
+import net.corda.core.identity.Party;
+import net.corda.core.node.AppServiceHub;
+import net.corda.core.node.services.CordaService;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.vault.PageSpecification;
+import net.corda.core.node.services.vault.QueryCriteria;
+import net.corda.core.node.services.vault.Sort;
+import net.corda.core.node.services.vault.SortAttribute;
+import net.corda.core.serialization.SingletonSerializeAsToken;
+import net.corda.training.states.IOUState;
+
+import java.util.Collections;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import static net.corda.core.node.services.vault.QueryCriteriaUtils.DEFAULT_PAGE_NUM;
+
+/**
+ * This is the node service which keeps the outstanding amount (amount - paid) of unconsumed [IOUState]s
+ * per lender, borrower and currency.
+ * - The totals are updated from vault updates, so Issue, Transfer and Settle are all covered by
+ *   subtracting the consumed IOUs and adding the produced ones.
+ * - The totals are rebuilt from the vault once after startup, on the first query. A service cannot
+ *   query the vault from its constructor, so the rebuild runs inside the querying flow's transaction.
+ * - The refs of the counted IOUs are kept, so an update racing with the rebuild is never counted twice.
+ */
+@CordaService
+public class ExposureService extends SingletonSerializeAsToken {
+
+    private static final int REBUILD_PAGE_SIZE = 1000;
+
+    private final AppServiceHub serviceHub;
+    private final Map<Counterparties, Map<Currency, Long>> outstanding = new HashMap<>();
+    private final Set<StateRef> counted = new HashSet<>();
+    private boolean rebuilt = false;
+
+    public ExposureService(AppServiceHub serviceHub) {
+        this.serviceHub = serviceHub;
+        serviceHub.getVaultService().getUpdates().subscribe(this::apply);
+    }
+
+    /**
+     * Returns how much the borrower owes the lender in the given currency.
+     */
+    public synchronized Amount<Currency> outstanding(Party lender, Party borrower, Currency currency) {
+        rebuildIfNeeded();
+        Long quantity = outstanding.getOrDefault(new Counterparties(lender, borrower), new HashMap<>()).get(currency);
+        return new Amount<>(quantity == null ? 0L : quantity, currency);
+    }
+
+    /**
+     * Returns how much the borrower owes the lender in each currency.
+     */
+    public synchronized Map<Currency, Amount<Currency>> outstanding(Party lender, Party borrower) {
+        rebuildIfNeeded();
+        Map<Currency, Amount<Currency>> amounts = new HashMap<>();
+        outstanding.getOrDefault(new Counterparties(lender, borrower), new HashMap<>())
+                .forEach((currency, quantity) -> amounts.put(currency, new Amount<>(quantity, currency)));
+        return amounts;
+    }
+
+    private synchronized void apply(Vault.Update<ContractState> update) {
+        for (StateAndRef<ContractState> consumed : update.getConsumed()) {
+            if (consumed.getState().getData() instanceof IOUState && counted.remove(consumed.getRef())) {
+                add((IOUState) consumed.getState().getData(), -1);
+            }
+        }
+        for (StateAndRef<ContractState> produced : update.getProduced()) {
+            if (produced.getState().getData() instanceof IOUState && counted.add(produced.getRef())) {
+                add((IOUState) produced.getState().getData(), 1);
+            }
+        }
+    }
+
+    private void rebuildIfNeeded() {
+        if (rebuilt) {
+            return;
+        }
+        QueryCriteria unconsumed = new QueryCriteria.VaultQueryCriteria(Vault.StateStatus.UNCONSUMED);
+        // Paging is only stable with an ordering, otherwise states can be skipped between pages.
+        Sort byStateRef = new Sort(Collections.singleton(new Sort.SortColumn(
+                new SortAttribute.Standard(Sort.CommonStateAttribute.STATE_REF), Sort.Direction.ASC)));
+        int pageNumber = DEFAULT_PAGE_NUM;
+        long seen = 0;
+        Vault.Page<IOUState> page;
+        do {
+            page = serviceHub.getVaultService().queryBy(IOUState.class, unconsumed, new PageSpecification(pageNumber++, REBUILD_PAGE_SIZE), byStateRef);
+            for (StateAndRef<IOUState> state : page.getStates()) {
+                if (counted.add(state.getRef())) {
+                    add(state.getState().getData(), 1);
+                }
+            }
+            seen += page.getStates().size();
+        } while (!page.getStates().isEmpty() && seen < page.getTotalStatesAvailable());
+        rebuilt = true;
+    }
+
+    private void add(IOUState iou, int sign) {
+        long quantity = iou.getAmount().getQuantity() - iou.getPaid().getQuantity();
+        outstanding.computeIfAbsent(new Counterparties(iou.getLender(), iou.getBorrower()), key -> new HashMap<>())
+                .merge(iou.getAmount().getToken(), sign * quantity, Long::sum);
+    }
+
+    private static final class Counterparties {
+        private final Party lender;
+        private final Party borrower;
+
+        private Counterparties(Party lender, Party borrower) {
+            this.lender = lender;
+            this.borrower = borrower;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Counterparties)) return false;
+            Counterparties that = (Counterparties) o;
+            return lender.equals(that.lender) && borrower.equals(that.borrower);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(lender, borrower);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package net.corda.training.client;
+
+import net.corda.core.messaging.CordaRPCOps;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * This is how the [IOUBulkClient] starts a flow and gets its return value.
+ * Use [rpc] for a running node. For a MockNetwork node, pass
+ * `command -> node.startFlow(command.toFlow()).toCompletableFuture()`.
+ * The MockNetwork must be created with threadPerNode enabled. Otherwise the flows only run while the network
+ * is pumped with runNetwork, and the client blocks on its first full set of flows in flight.
+ */
+@FunctionalInterface
+public interface FlowSubmitter {
+
+    CompletableFuture<?> submit(BulkCommand command);
+
+    static FlowSubmitter rpc(CordaRPCOps proxy) {
+        return command -> proxy.startFlowDynamic(command.getFlowClass(), command.getArguments())
+                .getReturnValue().toCompletableFuture();
+    }
+}
@@ -0,0 +1,312 @@
+package net.corda.training.flow;
+
+import co.paralleluniverse.fibers.Suspendable;
+import net.corda.core.contracts.Command;
+import net.corda.core.contracts.ContractState;
+import net.corda.core.contracts.ReferencedStateAndRef;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.contracts.UniqueIdentifier;
+import net.corda.core.crypto.TransactionSignature;
+import net.corda.core.flows.*;
+import net.corda.core.identity.AbstractParty;
+import net.corda.core.identity.Party;
+import net.corda.core.node.StatesToRecord;
+import net.corda.core.node.services.vault.QueryCriteria;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.core.transactions.TransactionBuilder;
+import net.corda.training.contracts.IOUContract;
+import net.corda.training.flow.utilities.InstanceGenerateFlow;
+import net.corda.training.states.AddressState;
+import net.corda.training.states.IOUState;
+
+import java.security.PublicKey;
+import java.security.SignatureException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static net.corda.core.contracts.ContractsDSL.requireThat;
+import static net.corda.training.contracts.IOUContract.Commands.Issue;
+import static net.corda.training.contracts.IOUContract.Commands.Transfer;
+
+/**
+ * This is the flow which collects the signatures of many IOU transactions over one session per counterparty.
+ * The initiator sends every transaction a counterparty must sign, and the responder checks each one with the
+ * same rule as the IOUIssueFlow and IOUTransferFlow responders and returns all of its signatures in one message.
+ * Each transaction is then finalised on its own, so they stay separate on the ledger.
+ * The flow returns the [SignedTransaction]s that were committed to the ledger, in the order they were given.
+ */
+public class IOUBatchSignFlow {
+
+    public static final int MAX_BATCH_SIZE = 500;
+
+    @InitiatingFlow
+    public static class Initiator extends FlowLogic<List<SignedTransaction>> {
+
+        private final List<SignedTransaction> transactions;
+
+        /**
+         * @param transactions transactions already verified and signed by this node.
+         *                     They are verified again by the [FinalityFlow].
+         */
+        public Initiator(List<SignedTransaction> transactions) {
+            this.transactions = transactions;
+        }
+
+        @Suspendable
+        @Override
+        @SuppressWarnings("unchecked")
+        public List<SignedTransaction> call() throws FlowException {
+            if (transactions.isEmpty() || transactions.size() > MAX_BATCH_SIZE) {
+                throw new FlowException("A batch must contain between 1 and " + MAX_BATCH_SIZE + " transactions.");
+            }
+
+            // 1. Find the counterparties which must sign each transaction.
+            Map<Party, List<Integer>> indexesByParty = new LinkedHashMap<>();
+            for (int i = 0; i < transactions.size(); i++) {
+                SignedTransaction stx = transactions.get(i);
+                for (PublicKey key : stx.getMissingSigners()) {
+                    // The notary signs during finalisation.
+                    if (stx.getNotary() != null && key.equals(stx.getNotary().getOwningKey())) {
+                        continue;
+                    }
+                    Party party = getServiceHub().getIdentityService().partyFromKey(key);
+                    if (party == null) {
+                        throw new FlowException("Unknown signer of transaction " + stx.getId());
+                    }
+                    indexesByParty.computeIfAbsent(party, p -> new ArrayList<>()).add(i);
+                }
+            }
+
+            // 2. Send each counterparty all of its transactions over one session and collect its signatures.
+            List<SignedTransaction> signed = new ArrayList<>(transactions);
+            Map<Party, FlowSession> sessions = new LinkedHashMap<>();
+            for (Map.Entry<Party, List<Integer>> entry : indexesByParty.entrySet()) {
+                Party party = entry.getKey();
+                List<Integer> indexes = entry.getValue();
+                FlowSession session = initiateFlow(party);
+                sessions.put(party, session);
+
+                session.send(indexes.size());
+                for (int index : indexes) {
+                    subFlow(new SendTransactionFlow(session, transactions.get(index)));
+                }
+                List<TransactionSignature> signatures = session.receive(List.class).unwrap(list -> {
+                    if (list.size() != indexes.size()) {
+                        throw new FlowException(party + " returned " + list.size() + " signatures for " + indexes.size() + " transactions.");
+                    }
+                    return (List<TransactionSignature>) list;
+                });
+
+                for (int j = 0; j < indexes.size(); j++) {
+                    int index = indexes.get(j);
+                    TransactionSignature signature = signatures.get(j);
+                    if (!signature.getBy().equals(party.getOwningKey()) || !signature.isValid(signed.get(index).getId())) {
+                        throw new FlowException(party + " returned an invalid signature for transaction " + signed.get(index).getId());
+                    }
+                    signed.set(index, signed.get(index).withAdditionalSignature(signature));
+                }
+            }
+
+            // 3. Finalise each transaction with the sessions of its counterparties.
+            List<SignedTransaction> finalised = new ArrayList<>();
+            for (int i = 0; i < signed.size(); i++) {
+                final int index = i;
+                List<FlowSession> txSessions = indexesByParty.entrySet().stream()
+                        .filter(entry -> entry.getValue().contains(index))
+                        .map(entry -> sessions.get(entry.getKey()))
+                        .collect(Collectors.toList());
+                finalised.add(subFlow(new FinalityFlow(signed.get(i), txSessions)));
+            }
+            return finalised;
+        }
+    }
+
+    /**
+     * This is the flow which signs a batch of IOU transactions.
+     * Each transaction is resolved and verified by the [ReceiveTransactionFlow] before it is checked and signed.
+     * As in the [SignTransactionFlow], the signatures present must be valid and include the initiator's,
+     * the missing ones are left to the other signers, and ours must be missing.
+     */
+    @InitiatedBy(IOUBatchSignFlow.Initiator.class)
+    public static class Responder extends FlowLogic<List<SignedTransaction>> {
+
+        private final FlowSession otherPartyFlow;
+
+        public Responder(FlowSession otherPartyFlow) {
+            this.otherPartyFlow = otherPartyFlow;
+        }
+
+        @Suspendable
+        @Override
+        public List<SignedTransaction> call() throws FlowException {
+            int count = otherPartyFlow.receive(Integer.class).unwrap(size -> {
+                if (size < 1 || size > MAX_BATCH_SIZE) {
+                    throw new FlowException("A batch must contain between 1 and " + MAX_BATCH_SIZE + " transactions.");
+                }
+                return size;
+            });
+
+            // 1. Receive, verify, check and sign every transaction of the batch.
+            List<SignedTransaction> received = new ArrayList<>();
+            List<TransactionSignature> signatures = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                SignedTransaction stx = subFlow(new ReceiveTransactionFlow(otherPartyFlow, false, StatesToRecord.NONE));
+                checkTransaction(stx);
+                received.add(stx);
+                signatures.add(getServiceHub().createSignature(stx));
+            }
+
+            // 2. Return all signatures in one message.
+            otherPartyFlow.send(signatures);
+
+            // 3. Run the ReceiveFinalityFlow for each transaction to persist it to the vault.
+            List<SignedTransaction> finalised = new ArrayList<>();
+            for (SignedTransaction stx : received) {
+                finalised.add(subFlow(new ReceiveFinalityFlow(otherPartyFlow, stx.getId())));
+            }
+            return finalised;
+        }
+
+        private void checkTransaction(SignedTransaction stx) throws FlowException {
+            final PublicKey ourKey = getOurIdentity().getOwningKey();
+            final PublicKey initiatorKey = otherPartyFlow.getCounterparty().getOwningKey();
+            final Set<PublicKey> signedBy = stx.getSigs().stream()
+                    .map(TransactionSignature::getBy)
+                    .collect(Collectors.toSet());
+            try {
+                stx.verifySignaturesExcept(stx.getMissingSigners());
+            } catch (SignatureException e) {
+                throw new FlowException("Transaction " + stx.getId() + " was rejected: " + e.getMessage());
+            }
+            try {
+                requireThat(require -> {
+                    require.using("This node must not have signed already", !signedBy.contains(ourKey));
+                    require.using("The initiator must have signed", signedBy.contains(initiatorKey));
+                    ContractState output = stx.getTx().getOutputs().get(0).getData();
+                    require.using("This must be an IOU transaction", output instanceof IOUState);
+                    require.using("This node must be a required signer",
+                            stx.getTx().getRequiredSigningKeys().contains(ourKey));
+                    return null;
+                });
+            } catch (IllegalArgumentException e) {
+                throw new FlowException("Transaction " + stx.getId() + " was rejected: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * This is the flow which issues many IOUs to one lender and collects the lender's signatures in one batch.
+     * It builds each transaction the same way as IOUIssueFlow.
+     */
+    @StartableByRPC
+    public static class IssueBatch extends FlowLogic<List<SignedTransaction>> {
+
+        private final String currency;
+        private final List<Long> amounts;
+        private final Party lender;
+        private final Party addressStateIssuer;
+
+        public IssueBatch(String currency, List<Long> amounts, Party lender, Party addressStateIssuer) {
+            this.currency = currency;
+            this.amounts = amounts;
+            this.lender = lender;
+            this.addressStateIssuer = addressStateIssuer;
+        }
+
+        @Suspendable
+        @Override
+        public List<SignedTransaction> call() throws FlowException {
+            final Party borrower = getOurIdentity();
+            final Party notary = getServiceHub().getNetworkMapCache().getNotaryIdentities().get(0);
+            final StateAndRef<AddressState> addressBody = getServiceHub().getVaultService().queryBy(AddressState.class)
+                    .getStates().stream()
+                    .filter(address -> address.getState().getData().getIssuer().equals(addressStateIssuer))
+                    .findFirst().orElse(null);
+
+            List<SignedTransaction> transactions = new ArrayList<>();
+            for (long amount : amounts) {
+                final IOUState state = subFlow(new InstanceGenerateFlow(currency, amount, lender, borrower));
+                final Command<Issue> issueCommand = new Command<>(
+                        new Issue(), state.getParticipants()
+                        .stream().map(AbstractParty::getOwningKey)
+                        .collect(Collectors.toList()));
+
+                final TransactionBuilder builder = new TransactionBuilder(notary);
+                builder.addOutputState(state, IOUContract.IOU_CONTRACT_ID);
+                builder.addCommand(issueCommand);
+                if (addressBody != null) {
+                    builder.addReferenceState(new ReferencedStateAndRef<>(addressBody));
+                }
+
+                builder.verify(getServiceHub());
+                transactions.add(getServiceHub().signInitialTransaction(builder));
+            }
+            return subFlow(new Initiator(transactions));
+        }
+    }
+
+    /**
+     * This is the flow which transfers many IOUs to one new lender in one batch.
+     * It must be run by the current lender and builds each transaction the same way as IOUTransferFlow,
+     * so each one is signed by the borrower, the current lender and the new lender.
+     */
+    @StartableByRPC
+    public static class TransferBatch extends FlowLogic<List<SignedTransaction>> {
+
+        private final List<UniqueIdentifier> stateLinearIds;
+        private final Party newLender;
+        private final Party addressStateIssuer;
+
+        public TransferBatch(List<UniqueIdentifier> stateLinearIds, Party newLender, Party addressStateIssuer) {
+            this.stateLinearIds = stateLinearIds;
+            this.newLender = newLender;
+            this.addressStateIssuer = addressStateIssuer;
+        }
+
+        @Suspendable
+        @Override
+        public List<SignedTransaction> call() throws FlowException {
+            final Party notary = getServiceHub().getNetworkMapCache().getNotaryIdentities().get(0);
+            final StateAndRef<AddressState> addressBody = getServiceHub().getVaultService().queryBy(AddressState.class)
+                    .getStates().stream()
+                    .filter(address -> address.getState().getData().getIssuer().equals(addressStateIssuer))
+                    .findFirst().orElse(null);
+
+            List<UUID> ids = stateLinearIds.stream().map(UniqueIdentifier::getId).collect(Collectors.toList());
+            QueryCriteria criteria = new QueryCriteria.LinearStateQueryCriteria(null, ids);
+            List<StateAndRef<IOUState>> inputs = getServiceHub().getVaultService().queryBy(IOUState.class, criteria).getStates();
+            if (inputs.size() != stateLinearIds.size()) {
+                throw new FlowException("Only " + inputs.size() + " of the " + stateLinearIds.size() + " IOUs were found.");
+            }
+
+            List<SignedTransaction> transactions = new ArrayList<>();
+            for (StateAndRef<IOUState> input : inputs) {
+                final IOUState iou = input.getState().getData();
+                if (!iou.getLender().getOwningKey().equals(getOurIdentity().getOwningKey())) {
+                    throw new FlowException("This flow must be run by the current lender of " + iou.getLinearId());
+                }
+                List<PublicKey> signers = iou.getParticipants().stream()
+                        .map(AbstractParty::getOwningKey)
+                        .collect(Collectors.toList());
+                signers.add(newLender.getOwningKey());
+
+                final TransactionBuilder builder = new TransactionBuilder(notary);
+                builder.addCommand(new Command<>(new Transfer(), signers));
+                builder.addInputState(input);
+                builder.addOutputState(iou.withNewLender(newLender), IOUContract.IOU_CONTRACT_ID);
+                if (addressBody != null) {
+                    builder.addReferenceState(new ReferencedStateAndRef<>(addressBody));
+                }
+
+                builder.verify(getServiceHub());
+                transactions.add(getServiceHub().signInitialTransaction(builder));
+            }
+            return subFlow(new Initiator(transactions));
+        }
+    }
+}
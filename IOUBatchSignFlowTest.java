@@ -0,0 +1,93 @@
+package net.corda.training.flow;
+
+import com.google.common.collect.ImmutableList;
+import net.corda.core.concurrent.CordaFuture;
+import net.corda.core.contracts.UniqueIdentifier;
+import net.corda.core.crypto.TransactionSignature;
+import net.corda.core.flows.FlowLogic;
+import net.corda.core.identity.Party;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.testing.node.MockNetwork;
+import net.corda.testing.node.MockNetworkParameters;
+import net.corda.testing.node.MockNodeParameters;
+import net.corda.testing.node.StartedMockNode;
+import net.corda.testing.node.TestCordapp;
+import net.corda.training.states.IOUState;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.security.PublicKey;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This runs the IOUBatchSignFlow on a MockNetwork.
+ * A transfer needs the signatures of the borrower, the current lender and the new lender, so each responder
+ * receives a transaction which is still missing the other responder's signature.
+ */
+public class IOUBatchSignFlowTest {
+
+    private MockNetwork network;
+    private StartedMockNode borrower;
+    private StartedMockNode lender;
+    private StartedMockNode newLender;
+
+    @Before
+    public void setup() {
+        network = new MockNetwork(new MockNetworkParameters().withCordappsForAllNodes(ImmutableList.of(
+                TestCordapp.findCordapp("net.corda.training.contracts"),
+                TestCordapp.findCordapp("net.corda.training.flow"))));
+        borrower = network.createNode(new MockNodeParameters());
+        lender = network.createNode(new MockNodeParameters());
+        newLender = network.createNode(new MockNodeParameters());
+        network.runNetwork();
+    }
+
+    @After
+    public void tearDown() {
+        network.stopNodes();
+    }
+
+    @Test
+    public void transferBatchIsSignedByBorrowerAndBothLenders() throws Exception {
+        List<SignedTransaction> issued = runFlow(borrower, new IOUBatchSignFlow.IssueBatch(
+                "USD", ImmutableList.of(10L, 20L), identity(lender), identity(borrower)));
+        List<UniqueIdentifier> linearIds = issued.stream()
+                .map(stx -> stx.getTx().outputsOfType(IOUState.class).get(0).getLinearId())
+                .collect(Collectors.toList());
+
+        List<SignedTransaction> transferred = runFlow(lender, new IOUBatchSignFlow.TransferBatch(
+                linearIds, identity(newLender), identity(borrower)));
+
+        assertEquals(2, transferred.size());
+        for (SignedTransaction stx : transferred) {
+            stx.verifyRequiredSignatures();
+            Set<PublicKey> signedBy = stx.getSigs().stream()
+                    .map(TransactionSignature::getBy)
+                    .collect(Collectors.toSet());
+            assertTrue(signedBy.contains(identity(borrower).getOwningKey()));
+            assertTrue(signedBy.contains(identity(lender).getOwningKey()));
+            assertTrue(signedBy.contains(identity(newLender).getOwningKey()));
+            assertEquals(identity(newLender), stx.getTx().outputsOfType(IOUState.class).get(0).getLender());
+            for (StartedMockNode node : ImmutableList.of(borrower, newLender)) {
+                assertNotNull(node.getServices().getValidatedTransactions().getTransaction(stx.getId()));
+            }
+        }
+    }
+
+    private <T> T runFlow(StartedMockNode node, FlowLogic<T> flow) throws Exception {
+        CordaFuture<T> future = node.startFlow(flow);
+        network.runNetwork();
+        return future.get();
+    }
+
+    private static Party identity(StartedMockNode node) {
+        return node.getInfo().getLegalIdentities().get(0);
+    }
+}
@@ -0,0 +1,142 @@
+package net.corda.training.client;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * This is the client which submits streams of issue, transfer and move commands to a node.
+ * - Up to [maxInFlight] flows run at the same time. Submitting blocks while that many are running,
+ *   so a long stream never queues more flows than the node is asked to run.
+ * - Every command gets its own future, which completes with the flow's return value.
+ * - [getStats] returns the throughput, latency and errors of everything submitted so far.
+ * The client starts flows through a [FlowSubmitter], so it runs the same way against RPC and MockNetwork.
+ */
+public class IOUBulkClient {
+
+    private final FlowSubmitter submitter;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+
+    // System.nanoTime() values can be any long, so whether they are set is tracked separately.
+    private final Object firstSubmittedLock = new Object();
+    private volatile boolean anySubmitted = false;
+    private volatile long firstSubmittedAt;
+    private final AtomicLong lastCompletedAt = new AtomicLong(Long.MIN_VALUE);
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder totalLatencyNanos = new LongAdder();
+    private final AtomicLong maxLatencyNanos = new AtomicLong(0);
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+    public IOUBulkClient(FlowSubmitter submitter, int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("At least one flow must be allowed in flight.");
+        }
+        this.submitter = submitter;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Starts the flow of the command once a slot is free and returns the future of its return value.
+     */
+    public CompletableFuture<Object> submit(BulkCommand command) throws InterruptedException {
+        inFlight.acquire();
+        long startedAt = System.nanoTime();
+        if (!anySubmitted) {
+            synchronized (firstSubmittedLock) {
+                if (!anySubmitted) {
+                    firstSubmittedAt = startedAt;
+                    anySubmitted = true;
+                }
+            }
+        }
+        submitted.increment();
+
+        CompletableFuture<?> started;
+        try {
+            started = submitter.submit(command);
+        } catch (RuntimeException e) {
+            CompletableFuture<Object> notStarted = new CompletableFuture<>();
+            notStarted.completeExceptionally(e);
+            started = notStarted;
+        }
+
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        started.whenComplete((value, error) -> {
+            long completedAt = System.nanoTime();
+            record(completedAt - startedAt, error);
+            lastCompletedAt.accumulateAndGet(completedAt, Math::max);
+            inFlight.release();
+            if (error == null) {
+                result.complete(value);
+            } else {
+                result.completeExceptionally(error);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Submits every command of the stream in order and returns their futures in the same order.
+     */
+    public List<CompletableFuture<Object>> submitAll(Stream<BulkCommand> commands) {
+        return commands.map(command -> {
+            try {
+                return submit(command);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                CompletableFuture<Object> interrupted = new CompletableFuture<>();
+                interrupted.completeExceptionally(e);
+                return interrupted;
+            }
+        }).collect(Collectors.toList());
+    }
+
+    /**
+     * Waits until every submitted flow has completed.
+     */
+    public void awaitIdle() throws InterruptedException {
+        inFlight.acquire(maxInFlight);
+        inFlight.release(maxInFlight);
+    }
+
+    public BulkStats getStats() {
+        long succeededCount = succeeded.sum();
+        long failedCount = failed.sum();
+        long completed = succeededCount + failedCount;
+        long elapsedNanos = !anySubmitted || completed == 0 ? 0 : Math.max(lastCompletedAt.get() - firstSubmittedAt, 0);
+        Map<String, Long> errorCounts = errors.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().sum()));
+        return new BulkStats(
+                submitted.sum(),
+                succeededCount,
+                failedCount,
+                maxInFlight - inFlight.availablePermits(),
+                elapsedNanos,
+                completed == 0 ? 0 : totalLatencyNanos.sum() / completed,
+                maxLatencyNanos.get(),
+                errorCounts);
+    }
+
+    private void record(long latencyNanos, Throwable error) {
+        totalLatencyNanos.add(latencyNanos);
+        maxLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+        if (error == null) {
+            succeeded.increment();
+        } else {
+            failed.increment();
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            errors.computeIfAbsent(cause.getClass().getName(), key -> new LongAdder()).increment();
+        }
+    }
+}
@@ -14,9 +14,12 @@ import net.corda.core.transactions.TransactionBuilder;
 import net.corda.core.utilities.ProgressTracker;
 import net.corda.training.contracts.IOUContract;
 import net.corda.training.flow.utilities.InstanceGenerateFlow;
+import net.corda.training.services.IssueRequestService;
 import net.corda.training.states.AddressState;
 import net.corda.training.states.IOUState;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -31,6 +34,8 @@ import static net.corda.training.contracts.IOUContract.Commands.Issue;
  * Gathering the counterparty's signature is handled by the [CollectSignaturesFlow].
  * Notarisation (if required) and commitment to the ledger is handled by the [FinalityFlow].
  * The flow returns the [SignedTransaction] that was committed to the ledger.
+ * When a [requestId] is given, a retry with the same id returns the transaction issued by the first run
+ * and a concurrent duplicate waits for the first run to finish.
  */
 public class IOUIssueFlow {
 
@@ -43,18 +48,53 @@ public class IOUIssueFlow {
 		private final Party lender;
 		private final Party borrower;
 		private final Party addressStateIssuer;
+		private final String requestId;
+
+		private static final Duration DUPLICATE_POLL_INTERVAL = Duration.ofSeconds(1);
 
 		public InitiatorFlow(String currency, long amount, Party lender, Party borrower,Party addressStateIssuer) {
+			this(currency, amount, lender, borrower, addressStateIssuer, null);
+		}
+
+		public InitiatorFlow(String currency, long amount, Party lender, Party borrower,Party addressStateIssuer, String requestId) {
 			this.currency = currency;
 			this.amount = amount;
 			this.lender = lender;
 			this.borrower = borrower;
 			this.addressStateIssuer=addressStateIssuer;
+			this.requestId=requestId;
 		}
 
 		@Suspendable
 		@Override
 		public SignedTransaction call() throws FlowException {
+			if (requestId == null) {
+				return issue();
+			}
+
+			// Return the transaction of an earlier run with the same request id, or wait for a concurrent one.
+			final IssueRequestService requests = getServiceHub().cordaService(IssueRequestService.class);
+			final String owner = getRunId().getUuid().toString();
+			final SignedTransaction existing = awaitExisting(requests, owner);
+			if (existing != null) {
+				return existing;
+			}
+			try {
+				final SignedTransaction stx = issue();
+				requests.complete(requestId, owner, stx.getId());
+				return stx;
+			} catch (NotaryException e) {
+				// The notary did not sign, so the transaction is not on the ledger and may be issued again.
+				requests.fail(requestId, owner, true);
+				throw e;
+			} catch (FlowException | RuntimeException e) {
+				requests.fail(requestId, owner, false);
+				throw e;
+			}
+		}
+
+		@Suspendable
+		private SignedTransaction issue() throws FlowException {
 			// 1. create IOUState
 			// Note .Make sure that the Party of the lender and the executing node are equal.
 			if ( !borrower.equals(getOurIdentity())){
@@ -104,9 +144,42 @@ public class IOUIssueFlow {
 			SignedTransaction stx = subFlow(new CollectSignaturesFlow(ptx, sessions));
 
 			// 9. Assuming no exceptions, we can now finalise the transaction
+			//    unless a duplicate has taken over the request id in the meantime.
+			//    The request is marked FINALISING first, so that it is not issued again once it may be notarised.
+			if (requestId != null) {
+				getServiceHub().cordaService(IssueRequestService.class)
+						.finalising(requestId, getRunId().getUuid().toString(), stx.getId());
+			}
 			return subFlow(new FinalityFlow(stx, sessions));
 		}
 
+		/**
+		 * This is the function which returns the transaction already issued for the request id.
+		 * It returns null once this flow owns the request id, and sleeps while another flow owns it.
+		 */
+		@Suspendable
+		private SignedTransaction awaitExisting(IssueRequestService requests, String owner) throws FlowException {
+			final String parameters = currency + "|" + amount + "|" + lender.getName() + "|" + borrower.getName()
+					+ "|" + (addressStateIssuer == null ? "" : addressStateIssuer.getName().toString());
+			final Instant deadline = Instant.now().plus(requests.getWaitTimeout());
+			while (true) {
+				IssueRequestService.Claim claim = requests.claim(requestId, parameters, owner);
+				if (claim.isOwned()) {
+					return null;
+				}
+				if (claim.getTxId() != null) {
+					SignedTransaction stx = getServiceHub().getValidatedTransactions().getTransaction(claim.getTxId());
+					if (stx != null) {
+						return stx;
+					}
+				}
+				if (Instant.now().isAfter(deadline)) {
+					throw new FlowException("Issue request " + requestId + " is still in progress. Retry later.");
+				}
+				sleep(DUPLICATE_POLL_INTERVAL);
+			}
+		}
+
 		/**
 		 * This is the function which confirm whether the issuer is valid or not.
 		 */
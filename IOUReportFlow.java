@@ -0,0 +1,130 @@
+package net.corda.training.flow;
+
+import co.paralleluniverse.fibers.Suspendable;
+import com.google.common.collect.ImmutableList;
+import net.corda.core.contracts.Amount;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.flows.FlowException;
+import net.corda.core.flows.FlowLogic;
+import net.corda.core.flows.StartableByRPC;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.core.identity.Party;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.vault.Builder;
+import net.corda.core.node.services.vault.CriteriaExpression;
+import net.corda.core.node.services.vault.PageSpecification;
+import net.corda.core.node.services.vault.QueryCriteria;
+import net.corda.core.node.services.vault.Sort;
+import net.corda.training.schemas.IOUSchemaV1.PersistentIOU;
+import net.corda.training.states.IOUState;
+
+import java.lang.reflect.Field;
+import java.util.Currency;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static net.corda.core.node.services.vault.QueryCriteriaUtils.DEFAULT_PAGE_NUM;
+
+/**
+ * These are the flows which report on unconsumed IOUs.
+ * Every report is run as one SQL query on the [IOUSchemaV1] table through a VaultCustomQueryCriteria,
+ * so aggregation happens in the database and the memory used does not grow with the vault.
+ */
+public class IOUReportFlow {
+
+    /**
+     * Returns the outstanding amount (amount - paid) of all IOUs per currency.
+     */
+    @StartableByRPC
+    public static class OutstandingByCurrency extends FlowLogic<Map<Currency, Amount<Currency>>> {
+
+        @Suspendable
+        @Override
+        public Map<Currency, Amount<Currency>> call() throws FlowException {
+            // Each row of the result is [sum(outstanding), currency].
+            CriteriaExpression sumByCurrency = Builder.sum(field("outstanding"), ImmutableList.of(field("currency")));
+            List<Object> rows = getServiceHub().getVaultService()
+                    .queryBy(IOUState.class, new QueryCriteria.VaultCustomQueryCriteria(sumByCurrency))
+                    .getOtherResults();
+
+            Map<Currency, Amount<Currency>> outstanding = new LinkedHashMap<>();
+            for (int i = 0; i < rows.size(); i += 2) {
+                Currency currency = Currency.getInstance((String) rows.get(i + 1));
+                outstanding.put(currency, new Amount<>(((Number) rows.get(i)).longValue(), currency));
+            }
+            return outstanding;
+        }
+    }
+
+    /**
+     * Returns the borrowers with the largest outstanding amount in the given currency, largest first.
+     * Borrowers are returned by name, so borrowers unknown to this node's identity service are reported too.
+     */
+    @StartableByRPC
+    public static class TopBorrowers extends FlowLogic<Map<CordaX500Name, Amount<Currency>>> {
+
+        private final String currency;
+        private final int limit;
+
+        public TopBorrowers(String currency, int limit) {
+            this.currency = currency;
+            this.limit = limit;
+        }
+
+        @Suspendable
+        @Override
+        public Map<CordaX500Name, Amount<Currency>> call() throws FlowException {
+            // Each row of the result is [sum(outstanding), borrower].
+            QueryCriteria criteria = new QueryCriteria.VaultCustomQueryCriteria(Builder.equal(field("currency"), currency))
+                    .and(new QueryCriteria.VaultCustomQueryCriteria(Builder.sum(field("outstanding"),
+                            ImmutableList.of(field("borrower")), Sort.Direction.DESC)));
+            List<Object> rows = getServiceHub().getVaultService()
+                    .queryBy(IOUState.class, criteria, new PageSpecification(DEFAULT_PAGE_NUM, limit))
+                    .getOtherResults();
+
+            Currency token = Currency.getInstance(currency);
+            Map<CordaX500Name, Amount<Currency>> borrowers = new LinkedHashMap<>();
+            for (int i = 0; i < rows.size(); i += 2) {
+                CordaX500Name borrower = CordaX500Name.parse((String) rows.get(i + 1));
+                borrowers.put(borrower, new Amount<>(((Number) rows.get(i)).longValue(), token));
+            }
+            return borrowers;
+        }
+    }
+
+    /**
+     * Returns one page of the IOUs lent by the given lender.
+     */
+    @StartableByRPC
+    public static class ByLender extends FlowLogic<List<StateAndRef<IOUState>>> {
+
+        private final Party lender;
+        private final int pageNumber;
+        private final int pageSize;
+
+        public ByLender(Party lender, int pageNumber, int pageSize) {
+            this.lender = lender;
+            this.pageNumber = pageNumber;
+            this.pageSize = pageSize;
+        }
+
+        @Suspendable
+        @Override
+        public List<StateAndRef<IOUState>> call() throws FlowException {
+            QueryCriteria criteria = new QueryCriteria.VaultCustomQueryCriteria(
+                    Builder.equal(field("lender"), lender.getName().toString()), Vault.StateStatus.UNCONSUMED);
+            return getServiceHub().getVaultService()
+                    .queryBy(IOUState.class, criteria, new PageSpecification(pageNumber, pageSize))
+                    .getStates();
+        }
+    }
+
+    private static Field field(String name) throws FlowException {
+        try {
+            return PersistentIOU.class.getDeclaredField(name);
+        } catch (NoSuchFieldException e) {
+            throw new FlowException("Unknown IOU schema column " + name, e);
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package net.corda.training.schemas;
+
+/**
+ * The family of schemas for [IOUState].
+ */
+public class IOUSchema {
+}
@@ -0,0 +1,77 @@
+package net.corda.training.schemas;
+
+import com.google.common.collect.ImmutableList;
+import net.corda.core.schemas.MappedSchema;
+import net.corda.core.schemas.PersistentState;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.util.UUID;
+
+/**
+ * An [IOUState] schema.
+ * Lender, borrower, currency, amount and paid are indexed, so reports can filter, group and range on them in SQL.
+ * The outstanding amount (amount - paid) is stored as its own column, so it can be summed in SQL.
+ * Amounts are stored as quantities in the smallest unit of the currency.
+ */
+public class IOUSchemaV1 extends MappedSchema {
+
+    public IOUSchemaV1() {
+        super(IOUSchema.class, 1, ImmutableList.of(PersistentIOU.class));
+    }
+
+    @Entity
+    @Table(name = "iou_states", indexes = {
+            @Index(name = "iou_lender_idx", columnList = "lender"),
+            @Index(name = "iou_borrower_idx", columnList = "borrower"),
+            @Index(name = "iou_currency_idx", columnList = "currency"),
+            @Index(name = "iou_amount_idx", columnList = "amount"),
+            @Index(name = "iou_paid_idx", columnList = "paid")
+    })
+    public static class PersistentIOU extends PersistentState {
+        @Column(name = "linear_id") private final UUID linearId;
+        @Column(name = "lender") private final String lender;
+        @Column(name = "borrower") private final String borrower;
+        @Column(name = "currency", length = 3) private final String currency;
+        @Column(name = "amount") private final long amount;
+        @Column(name = "paid") private final long paid;
+        @Column(name = "outstanding") private final long outstanding;
+
+        public PersistentIOU(UUID linearId, String lender, String borrower, String currency, long amount, long paid) {
+            this.linearId = linearId;
+            this.lender = lender;
+            this.borrower = borrower;
+            this.currency = currency;
+            this.amount = amount;
+            this.paid = paid;
+            this.outstanding = amount - paid;
+        }
+
+        // Default constructor required by hibernate.
+        public PersistentIOU() {
+            this.linearId = null;
+            this.lender = null;
+            this.borrower = null;
+            this.currency = null;
+            this.amount = 0;
+            this.paid = 0;
+            this.outstanding = 0;
+        }
+
+        public UUID getLinearId() { return linearId; }
+
+        public String getLender() { return lender; }
+
+        public String getBorrower() { return borrower; }
+
+        public String getCurrency() { return currency; }
+
+        public long getAmount() { return amount; }
+
+        public long getPaid() { return paid; }
+
+        public long getOutstanding() { return outstanding; }
+    }
+}
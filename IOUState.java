@@ -0,0 +1,125 @@
+package net.corda.training.states;
+
+import com.google.common.collect.ImmutableList;
+import net.corda.core.contracts.Amount;
+import net.corda.core.contracts.BelongsToContract;
+import net.corda.core.contracts.LinearState;
+import net.corda.core.contracts.UniqueIdentifier;
+import net.corda.core.identity.AbstractParty;
+import net.corda.core.identity.Party;
+import net.corda.core.schemas.MappedSchema;
+import net.corda.core.schemas.PersistentState;
+import net.corda.core.schemas.QueryableState;
+import net.corda.core.serialization.ConstructorForDeserialization;
+import net.corda.training.contracts.IOUContract;
+import net.corda.training.schemas.IOUSchemaV1;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Currency;
+import java.util.List;
+
+/**
+ * The IOU State object, with the following properties:
+ * - [amount] The amount owed by the [borrower] to the [lender]
+ * - [lender] The lending party.
+ * - [borrower] The borrowing party.
+ * - [paid] Records how much of the [amount] has been paid.
+ * - [linearId] A unique id shared by all LinearState states representing the same agreement throughout history within
+ *   the vaults of all parties. Verify methods should check that one input and one output share the id in a transaction,
+ *   except at issuance/termination.
+ * The state is also persisted to the [IOUSchemaV1] table, so that reports can be queried in SQL.
+ */
+@BelongsToContract(IOUContract.class)
+public class IOUState implements LinearState, QueryableState {
+
+    private final Amount<Currency> amount;
+    private final Party lender;
+    private final Party borrower;
+    private final Amount<Currency> paid;
+    private final UniqueIdentifier linearId;
+
+    // Constructor used for copying a State object and for deserialization.
+    @ConstructorForDeserialization
+    public IOUState(Amount<Currency> amount, Party lender, Party borrower, Amount<Currency> paid, UniqueIdentifier linearId){
+        this.amount = amount;
+        this.lender = lender;
+        this.borrower = borrower;
+        this.paid = paid;
+        this.linearId = linearId;
+    }
+
+    public IOUState(Amount<Currency> amount, Party lender, Party borrower) {
+        this(amount, lender, borrower, new Amount<>(0, amount.getToken()), new UniqueIdentifier());
+    }
+
+    public Amount<Currency> getAmount() {
+        return amount;
+    }
+
+    public Party getLender() {
+        return lender;
+    }
+
+    public Party getBorrower() {
+        return borrower;
+    }
+
+    public Amount<Currency> getPaid() {
+        return paid;
+    }
+
+    @Override
+    public UniqueIdentifier getLinearId() {
+        return linearId;
+    }
+
+    /**
+     *  This method will return a list of the nodes which can "use" this state in a valid transaction. In this case, the
+     *  lender or the borrower.
+     */
+    @Override
+    public List<AbstractParty> getParticipants() {
+        return ImmutableList.of(lender, borrower);
+    }
+
+    /**
+     * Helper methods for when building transactions for settling and transferring IOUs.
+     * - [pay] adds an amount to the paid property. It does no validation.
+     * - [withNewLender] creates a copy of the current state with a newly specified lender. For use when transferring.
+     * - [copy] creates a copy of the state using the internal copy constructor ensuring the LinearId is preserved.
+     */
+    public IOUState pay(Amount<Currency> amountToPay) {
+        Amount<Currency> newAmountPaid = this.paid.plus(amountToPay);
+        return new IOUState(amount, lender, borrower, newAmountPaid, linearId);
+    }
+
+    public IOUState withNewLender(Party newLender) {
+        return new IOUState(amount, newLender, borrower, paid, linearId);
+    }
+
+    public IOUState copy(Amount<Currency> amount, Party lender, Party borrower, Amount<Currency> paid) {
+        return new IOUState(amount, lender, borrower, paid, this.getLinearId());
+    }
+
+    @NotNull
+    @Override
+    public PersistentState generateMappedObject(@NotNull MappedSchema schema) {
+        if (schema instanceof IOUSchemaV1) {
+            return new IOUSchemaV1.PersistentIOU(
+                    linearId.getId(),
+                    lender.getName().toString(),
+                    borrower.getName().toString(),
+                    amount.getToken().getCurrencyCode(),
+                    amount.getQuantity(),
+                    paid.getQuantity());
+        } else {
+            throw new IllegalArgumentException("Unrecognised schema " + schema);
+        }
+    }
+
+    @NotNull
+    @Override
+    public Iterable<MappedSchema> supportedSchemas() {
+        return ImmutableList.of(new IOUSchemaV1());
+    }
+}
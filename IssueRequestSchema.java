@@ -0,0 +1,7 @@
+package net.corda.training.schemas;
+
+/**
+ * The family of schemas for the client request ids of [IOUIssueFlow].
+ */
+public class IssueRequestSchema {
+}
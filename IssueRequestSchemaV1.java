@@ -0,0 +1,83 @@
+package net.corda.training.schemas;
+
+import com.google.common.collect.ImmutableList;
+import net.corda.core.schemas.MappedSchema;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.Instant;
+
+/**
+ * An issue request schema.
+ * One row is kept per client request id of [IOUIssueFlow]. The request id is the primary key, so it is indexed.
+ * - [status] IN_PROGRESS while a flow owns the request, FINALISING once its transaction is sent for notarisation,
+ *   COMPLETED once the IOU has been issued.
+ * - [parameters] The flow arguments the request id was first used with.
+ * - [owner] The run id of the flow which owns the request.
+ * - [txId] The id of the transaction being finalised or issued. Only set when FINALISING or COMPLETED.
+ */
+public class IssueRequestSchemaV1 extends MappedSchema {
+
+    public static final String IN_PROGRESS = "IN_PROGRESS";
+    public static final String FINALISING = "FINALISING";
+    public static final String COMPLETED = "COMPLETED";
+
+    public IssueRequestSchemaV1() {
+        super(IssueRequestSchema.class, 1, ImmutableList.of(PersistentIssueRequest.class));
+    }
+
+    @Entity
+    @Table(name = "iou_issue_requests")
+    public static class PersistentIssueRequest {
+        @Id @Column(name = "request_id", nullable = false) private String requestId;
+        @Column(name = "status", nullable = false, length = 16) private String status;
+        @Column(name = "parameters", nullable = false, length = 1024) private String parameters;
+        @Column(name = "owner", nullable = false, length = 36) private String owner;
+        @Column(name = "claimed_at", nullable = false) private Instant claimedAt;
+        @Column(name = "tx_id", length = 64) private String txId;
+
+        public PersistentIssueRequest(String requestId, String parameters, String owner, Instant claimedAt) {
+            this.requestId = requestId;
+            this.status = IN_PROGRESS;
+            this.parameters = parameters;
+            this.owner = owner;
+            this.claimedAt = claimedAt;
+            this.txId = null;
+        }
+
+        // Default constructor required by hibernate.
+        public PersistentIssueRequest() {
+        }
+
+        public String getRequestId() { return requestId; }
+
+        public String getStatus() { return status; }
+
+        public String getParameters() { return parameters; }
+
+        public String getOwner() { return owner; }
+
+        public Instant getClaimedAt() { return claimedAt; }
+
+        public String getTxId() { return txId; }
+
+        public void claim(String owner, Instant claimedAt) {
+            this.status = IN_PROGRESS;
+            this.owner = owner;
+            this.claimedAt = claimedAt;
+            this.txId = null;
+        }
+
+        public void finalising(String txId) {
+            this.status = FINALISING;
+            this.txId = txId;
+        }
+
+        public void complete(String txId) {
+            this.status = COMPLETED;
+            this.txId = txId;
+        }
+    }
+}
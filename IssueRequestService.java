@@ -0,0 +1,180 @@
+package net.corda.training.services;
+
+import net.corda.core.crypto.SecureHash;
+import net.corda.core.cordapp.CordappConfig;
+import net.corda.core.flows.FlowException;
+import net.corda.core.node.AppServiceHub;
+import net.corda.core.node.services.CordaService;
+import net.corda.core.serialization.SingletonSerializeAsToken;
+import net.corda.training.schemas.IssueRequestSchemaV1;
+import net.corda.training.schemas.IssueRequestSchemaV1.PersistentIssueRequest;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This is the node service which makes [IOUIssueFlow] idempotent for a client supplied request id.
+ * - A flow claims a request id by writing an IN_PROGRESS row of [IssueRequestSchemaV1]. The row is committed with
+ *   the flow's first checkpoint, so a flow resumed after a node restart still owns its request id.
+ * - Before the owner calls the [FinalityFlow], it marks the row FINALISING with the transaction id. The row is committed
+ *   with the checkpoint taken before the transaction is sent to the notary.
+ * - The owner marks the row COMPLETED in the same transaction that ends the flow.
+ * - The request ids owned by flows running in this node, and those whose owner failed, are kept in memory,
+ *   because a failed flow's database changes are rolled back and cannot release the row.
+ *   A failed request id whose row was rolled back as well is forgotten on the next claim.
+ * - A FINALISING request is completed once its transaction is recorded by this node. The [FinalityFlow] records it
+ *   before it is sent to the lender, so a failure after notarisation does not release the request id.
+ *   It is only taken over when the notary rejected the transaction.
+ * - Any other row whose owner is not known to this node is taken over once it is older than the claim timeout.
+ * The timeouts are configured with the following CorDapp config keys.
+ * - [issueRequest.claimTimeoutMillis] Defaults to 10 minutes.
+ * - [issueRequest.waitTimeoutMillis] How long a duplicate waits for the owner. Defaults to 1 minute.
+ * The methods must be called from a flow, so that the table is accessed in the flow's database transaction.
+ */
+@CordaService
+public class IssueRequestService extends SingletonSerializeAsToken {
+
+    public static final long DEFAULT_CLAIM_TIMEOUT_MILLIS = 10 * 60 * 1000;
+    public static final long DEFAULT_WAIT_TIMEOUT_MILLIS = 60 * 1000;
+
+    private final AppServiceHub serviceHub;
+    private final Duration claimTimeout;
+    private final Duration waitTimeout;
+    private final Map<String, String> running = new HashMap<>();
+    // Request ids whose owner failed, mapped to whether the notary rejected their transaction.
+    private final Map<String, Boolean> failed = new HashMap<>();
+
+    public IssueRequestService(AppServiceHub serviceHub) {
+        this.serviceHub = serviceHub;
+        CordappConfig config = serviceHub.getAppContext().getConfig();
+        this.claimTimeout = Duration.ofMillis(config.exists("issueRequest.claimTimeoutMillis")
+                ? config.getLong("issueRequest.claimTimeoutMillis") : DEFAULT_CLAIM_TIMEOUT_MILLIS);
+        this.waitTimeout = Duration.ofMillis(config.exists("issueRequest.waitTimeoutMillis")
+                ? config.getLong("issueRequest.waitTimeoutMillis") : DEFAULT_WAIT_TIMEOUT_MILLIS);
+    }
+
+    public Duration getWaitTimeout() { return waitTimeout; }
+
+    /**
+     * Claims the request id for the owner flow.
+     * Throws when the request id has already been used with different parameters.
+     */
+    public synchronized Claim claim(String requestId, String parameters, String owner) throws FlowException {
+        // A flow which failed before its first checkpoint rolled its row back, so there is nothing to take over.
+        failed.keySet().removeIf(failedId -> find(failedId) == null);
+        PersistentIssueRequest request = find(requestId);
+        Instant now = Instant.now();
+
+        if (request == null) {
+            // A row written by a running flow is not visible before that flow's first checkpoint.
+            if (running.containsKey(requestId) && !running.get(requestId).equals(owner)) {
+                return Claim.WAIT;
+            }
+            serviceHub.withEntityManager(entityManager -> {
+                entityManager.persist(new PersistentIssueRequest(requestId, parameters, owner, now));
+            });
+            return owned(requestId, owner);
+        }
+
+        if (!request.getParameters().equals(parameters)) {
+            throw new FlowException("Issue request " + requestId + " was already used with different parameters.");
+        }
+        if (IssueRequestSchemaV1.COMPLETED.equals(request.getStatus())) {
+            failed.remove(requestId);
+            return new Claim(false, SecureHash.parse(request.getTxId()));
+        }
+        if (IssueRequestSchemaV1.FINALISING.equals(request.getStatus())) {
+            SecureHash txId = SecureHash.parse(request.getTxId());
+            if (serviceHub.getValidatedTransactions().getTransaction(txId) != null) {
+                failed.remove(requestId);
+                return new Claim(false, txId);
+            }
+        }
+        if (request.getOwner().equals(owner)) {
+            return owned(requestId, owner);
+        }
+        boolean ownerFailed = failed.containsKey(requestId);
+        boolean ownerUnknown = !running.containsKey(requestId) && request.getClaimedAt().plus(claimTimeout).isBefore(now);
+        if (IssueRequestSchemaV1.FINALISING.equals(request.getStatus())
+                && (ownerFailed || ownerUnknown) && !Boolean.TRUE.equals(failed.get(requestId))) {
+            throw new FlowException("Issue request " + requestId + " failed while transaction " + request.getTxId()
+                    + " was being finalised. It may have been notarised, so it is not issued again.");
+        }
+        if (ownerFailed || ownerUnknown) {
+            serviceHub.withEntityManager(entityManager -> {
+                entityManager.find(PersistentIssueRequest.class, requestId).claim(owner, now);
+            });
+            return owned(requestId, owner);
+        }
+        return Claim.WAIT;
+    }
+
+    /**
+     * Marks the request FINALISING with the transaction about to be notarised.
+     * Throws when the request id has been taken over by another flow.
+     */
+    public synchronized void finalising(String requestId, String owner, SecureHash txId) throws FlowException {
+        PersistentIssueRequest request = find(requestId);
+        if (request == null || !request.getOwner().equals(owner)) {
+            throw new FlowException("Issue request " + requestId + " is no longer owned by this flow.");
+        }
+        serviceHub.withEntityManager(entityManager -> {
+            entityManager.find(PersistentIssueRequest.class, requestId).finalising(txId.toString());
+        });
+    }
+
+    /**
+     * Marks the request COMPLETED. The row is committed together with the rest of the owner flow.
+     */
+    public synchronized void complete(String requestId, String owner, SecureHash txId) {
+        serviceHub.withEntityManager(entityManager -> {
+            entityManager.find(PersistentIssueRequest.class, requestId).complete(txId.toString());
+        });
+        running.remove(requestId, owner);
+        failed.remove(requestId);
+    }
+
+    /**
+     * Lets a waiting duplicate take over the request after its owner failed.
+     * A FINALISING request is only taken over when [notaryRejected] is true.
+     */
+    public synchronized void fail(String requestId, String owner, boolean notaryRejected) {
+        if (running.remove(requestId, owner)) {
+            failed.put(requestId, notaryRejected);
+        }
+    }
+
+    private Claim owned(String requestId, String owner) {
+        running.put(requestId, owner);
+        failed.remove(requestId);
+        return Claim.OWNED;
+    }
+
+    private PersistentIssueRequest find(String requestId) {
+        return serviceHub.withEntityManager(entityManager -> {
+            return entityManager.find(PersistentIssueRequest.class, requestId);
+        });
+    }
+
+    /**
+     * The outcome of a claim: owned by the caller, completed with a transaction id, or to be waited for.
+     */
+    public static final class Claim {
+        static final Claim OWNED = new Claim(true, null);
+        static final Claim WAIT = new Claim(false, null);
+
+        private final boolean owned;
+        private final SecureHash txId;
+
+        private Claim(boolean owned, SecureHash txId) {
+            this.owned = owned;
+            this.txId = txId;
+        }
+
+        public boolean isOwned() { return owned; }
+
+        public SecureHash getTxId() { return txId; }
+    }
+}
@@ -0,0 +1,147 @@
+package net.corda.training.services;
+
+import net.corda.core.contracts.ContractState;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.contracts.StateRef;
+import net.corda.core.crypto.SecureHash;
+import net.corda.training.states.AddressState;
+import net.corda.training.states.IOUState;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * This is the binary layout of the records written to the [LedgerEventLog].
+ * - [kind] 1 byte: PRODUCED, CONSUMED or RESYNC.
+ * - [stateType] 1 byte: IOU or ADDRESS, or NONE for RESYNC.
+ * - [recordedAt] 8 bytes: epoch millis when the node saw the vault update.
+ * - [txId] 32 bytes and [index] 4 bytes: the StateRef.
+ * - [linearId] 16 bytes.
+ * - IOU payload: lender, borrower, currency code, amount quantity, paid quantity.
+ * - ADDRESS payload: issuer, address.
+ * Strings are written as a 2 byte length followed by UTF-8 bytes.
+ * A RESYNC record has a zero StateRef and linearId and no payload. It marks that events may be missing
+ * before it, so a consumer must rebuild its view from the vault as of [recordedAt].
+ */
+public final class LedgerEventCodec {
+
+    public static final byte PRODUCED = 0;
+    public static final byte CONSUMED = 1;
+    public static final byte RESYNC = 2;
+
+    public static final byte NONE = 0;
+
+    public static final byte IOU = 1;
+    public static final byte ADDRESS = 2;
+
+    private static final int KIND = 0;
+    private static final int STATE_TYPE = 1;
+    private static final int RECORDED_AT = 2;
+    private static final int TX_ID = 10;
+    private static final int INDEX = 42;
+    private static final int LINEAR_ID = 46;
+    private static final int PAYLOAD = 62;
+
+    private LedgerEventCodec() {}
+
+    /**
+     * Encodes an IOUState or AddressState event. Returns null for any other state.
+     */
+    public static ByteBuffer encode(byte kind, StateAndRef<? extends ContractState> stateAndRef, long recordedAt) {
+        ContractState data = stateAndRef.getState().getData();
+        ByteBuffer body;
+        if (data instanceof IOUState) {
+            IOUState iou = (IOUState) data;
+            byte[] lender = utf8(iou.getLender().getName().toString());
+            byte[] borrower = utf8(iou.getBorrower().getName().toString());
+            byte[] currency = utf8(iou.getAmount().getToken().getCurrencyCode());
+            body = header(kind, IOU, stateAndRef.getRef(), iou.getLinearId().getId(), recordedAt,
+                    3 * Short.BYTES + lender.length + borrower.length + currency.length + 2 * Long.BYTES);
+            putString(body, lender);
+            putString(body, borrower);
+            putString(body, currency);
+            body.putLong(iou.getAmount().getQuantity());
+            body.putLong(iou.getPaid().getQuantity());
+        } else if (data instanceof AddressState) {
+            AddressState address = (AddressState) data;
+            byte[] issuer = utf8(address.getIssuer().getName().toString());
+            byte[] location = utf8(address.getAddress());
+            body = header(kind, ADDRESS, stateAndRef.getRef(), address.getLinearId().getId(), recordedAt,
+                    2 * Short.BYTES + issuer.length + location.length);
+            putString(body, issuer);
+            putString(body, location);
+        } else {
+            return null;
+        }
+        body.flip();
+        return body;
+    }
+
+    /**
+     * Encodes a RESYNC marker.
+     */
+    public static ByteBuffer encodeResync(long recordedAt) {
+        ByteBuffer body = header(RESYNC, NONE, new StateRef(new SecureHash.SHA256(new byte[32]), 0), new UUID(0, 0), recordedAt, 0);
+        body.flip();
+        return body;
+    }
+
+    public static byte kind(ByteBuffer body) { return body.get(KIND); }
+
+    public static byte stateType(ByteBuffer body) { return body.get(STATE_TYPE); }
+
+    public static long recordedAt(ByteBuffer body) { return body.getLong(RECORDED_AT); }
+
+    public static StateRef stateRef(ByteBuffer body) {
+        byte[] txId = new byte[32];
+        ByteBuffer view = body.duplicate();
+        view.position(TX_ID);
+        view.get(txId);
+        return new StateRef(new SecureHash.SHA256(txId), body.getInt(INDEX));
+    }
+
+    public static UUID linearId(ByteBuffer body) {
+        return new UUID(body.getLong(LINEAR_ID), body.getLong(LINEAR_ID + Long.BYTES));
+    }
+
+    /**
+     * Returns a view positioned at the payload. Read it with [getString] and [ByteBuffer.getLong] in layout order.
+     */
+    public static ByteBuffer payload(ByteBuffer body) {
+        ByteBuffer view = body.duplicate();
+        view.position(PAYLOAD);
+        return view;
+    }
+
+    public static String getString(ByteBuffer payload) {
+        byte[] bytes = new byte[payload.getShort() & 0xFFFF];
+        payload.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static ByteBuffer header(byte kind, byte stateType, StateRef ref, UUID linearId, long recordedAt, int payloadBytes) {
+        ByteBuffer body = ByteBuffer.allocate(PAYLOAD + payloadBytes);
+        body.put(kind);
+        body.put(stateType);
+        body.putLong(recordedAt);
+        body.put(ref.getTxhash().getBytes());
+        body.putInt(ref.getIndex());
+        body.putLong(linearId.getMostSignificantBits());
+        body.putLong(linearId.getLeastSignificantBits());
+        return body;
+    }
+
+    private static byte[] utf8(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("String field is too long for the event log.");
+        }
+        return bytes;
+    }
+
+    private static void putString(ByteBuffer body, byte[] bytes) {
+        body.putShort((short) bytes.length);
+        body.put(bytes);
+    }
+}
@@ -0,0 +1,139 @@
+package net.corda.training.services;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * This is the append-only log which stores ledger events in memory-mapped segment files.
+ * - Every record is laid out as [length][body]. The length is written after the body, so a reader
+ *   treats a zero length as the end of the data written so far.
+ * - Every segment has the same size and is named after the global offset of its first byte,
+ *   so the segment holding an offset is found by dividing with the segment size.
+ * - When a record does not fit into the rest of the current segment, the next segment is opened.
+ * - On re-open, the last segment is zeroed after its last complete record. A record torn by a crash leaves its
+ *   body without a length, and a shorter record written over it would otherwise be followed by body bytes
+ *   which read as a length.
+ * The log is read with [LedgerEventLogReader].
+ */
+public class LedgerEventLog implements Closeable {
+
+    static final String SEGMENT_SUFFIX = ".log";
+    static final int LENGTH_BYTES = Integer.BYTES;
+    private static final int ZERO_CHUNK_BYTES = 64 * 1024;
+
+    private final Path directory;
+    private final int segmentBytes;
+
+    private long segmentBase;
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+
+    public LedgerEventLog(Path directory, int segmentBytes) throws IOException {
+        if (segmentBytes <= LENGTH_BYTES) {
+            throw new IllegalArgumentException("Segment size must be larger than " + LENGTH_BYTES + " bytes.");
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(directory);
+
+        //1. Re-open the last segment and move to the end of the records already written.
+        List<Long> bases = segmentBases(directory);
+        openSegment(bases.isEmpty() ? 0L : bases.get(bases.size() - 1));
+        int position = 0;
+        while (position + LENGTH_BYTES <= segmentBytes) {
+            int length = segment.getInt(position);
+            if (length <= 0 || length > segmentBytes - position - LENGTH_BYTES) {
+                break;
+            }
+            position += LENGTH_BYTES + length;
+        }
+
+        //2. Zero the rest of the segment, so nothing left by a torn record is appended after.
+        byte[] zeros = new byte[Math.min(segmentBytes - position, ZERO_CHUNK_BYTES)];
+        segment.position(position);
+        while (segment.hasRemaining()) {
+            segment.put(zeros, 0, Math.min(zeros.length, segment.remaining()));
+        }
+        segment.force();
+        segment.position(position);
+    }
+
+    /**
+     * Appends one record and returns its global offset.
+     */
+    public synchronized long append(ByteBuffer body) throws IOException {
+        int length = body.remaining();
+        if (length == 0 || LENGTH_BYTES + length > segmentBytes) {
+            throw new IllegalArgumentException("A record must be between 1 and " + (segmentBytes - LENGTH_BYTES) + " bytes.");
+        }
+        if (segment.remaining() < LENGTH_BYTES + length) {
+            rotate();
+        }
+
+        int position = segment.position();
+        segment.position(position + LENGTH_BYTES);
+        segment.put(body);
+        // Publish the record by writing its length last.
+        segment.putInt(position, length);
+        return segmentBase + position;
+    }
+
+    /**
+     * Returns the offset the next record will be written at.
+     */
+    public synchronized long endOffset() {
+        return segmentBase + segment.position();
+    }
+
+    public synchronized void flush() {
+        segment.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        segment.force();
+        channel.close();
+    }
+
+    private void rotate() throws IOException {
+        segment.force();
+        channel.close();
+        openSegment(segmentBase + segmentBytes);
+    }
+
+    private void openSegment(long base) throws IOException {
+        channel = FileChannel.open(segmentPath(directory, base),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        segmentBase = base;
+    }
+
+    static Path segmentPath(Path directory, long base) {
+        return directory.resolve(String.format("%020d%s", base, SEGMENT_SUFFIX));
+    }
+
+    static List<Long> segmentBases(Path directory) {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Long> bases = files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())))
+                    .collect(Collectors.toCollection(ArrayList::new));
+            Collections.sort(bases);
+            return bases;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package net.corda.training.services;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static net.corda.training.services.LedgerEventLog.LENGTH_BYTES;
+import static net.corda.training.services.LedgerEventLog.segmentPath;
+
+/**
+ * This is the sequential reader of a [LedgerEventLog].
+ * It maps the segments read-only and hands out record bodies as slices of the mapped files,
+ * so nothing is copied and the node database is never touched.
+ * The reader may run in another process than the node which writes the log.
+ */
+public class LedgerEventLogReader implements Closeable {
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final Map<Long, MappedByteBuffer> segments = new HashMap<>();
+
+    public LedgerEventLogReader(Path directory, int segmentBytes) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+    }
+
+    /**
+     * Returns the record at the given offset, or null when no record has been written there yet.
+     */
+    public Entry read(long offset) throws IOException {
+        long base = offset - offset % segmentBytes;
+        int position = (int) (offset - base);
+        MappedByteBuffer segment = segment(base);
+        if (segment == null) {
+            return null;
+        }
+
+        int length = position + LENGTH_BYTES <= segmentBytes ? segment.getInt(position) : 0;
+        if (length > segmentBytes - position - LENGTH_BYTES) {
+            // Only a record torn by a crash claims more than the rest of the segment. The writer zeroes it on re-open.
+            return null;
+        }
+        if (length > 0) {
+            ByteBuffer body = segment.duplicate();
+            body.position(position + LENGTH_BYTES);
+            body.limit(position + LENGTH_BYTES + length);
+            return new Entry(offset, body.slice());
+        }
+
+        // The writer moves on to the next segment when a record does not fit into the rest of this one.
+        long nextBase = base + segmentBytes;
+        if (position > 0 && Files.exists(segmentPath(directory, nextBase))) {
+            return read(nextBase);
+        }
+        return null;
+    }
+
+    /**
+     * Passes every record available from the given offset to the consumer and returns the offset to continue from.
+     */
+    public long poll(long offset, Consumer<Entry> consumer) throws IOException {
+        Entry entry = read(offset);
+        while (entry != null) {
+            consumer.accept(entry);
+            offset = entry.nextOffset();
+            entry = read(offset);
+        }
+        return offset;
+    }
+
+    @Override
+    public void close() {
+        segments.clear();
+    }
+
+    private MappedByteBuffer segment(long base) throws IOException {
+        MappedByteBuffer segment = segments.get(base);
+        if (segment == null) {
+            Path path = segmentPath(directory, base);
+            if (!Files.exists(path)) {
+                return null;
+            }
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                // The writer creates the file before it maps it to its full size.
+                if (channel.size() < segmentBytes) {
+                    return null;
+                }
+                segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, segmentBytes);
+            }
+            segments.put(base, segment);
+        }
+        return segment;
+    }
+
+    /**
+     * One record of the log. The body is a read-only view of the mapped segment.
+     */
+    public static final class Entry {
+        private final long offset;
+        private final ByteBuffer body;
+
+        private Entry(long offset, ByteBuffer body) {
+            this.offset = offset;
+            this.body = body;
+        }
+
+        public long getOffset() { return offset; }
+
+        public ByteBuffer getBody() { return body.duplicate(); }
+
+        public long nextOffset() { return offset + LENGTH_BYTES + body.capacity(); }
+    }
+}
@@ -0,0 +1,105 @@
+package net.corda.training.services;
+
+import net.corda.core.contracts.ContractState;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.cordapp.CordappConfig;
+import net.corda.core.node.AppServiceHub;
+import net.corda.core.node.services.CordaService;
+import net.corda.core.node.services.Vault;
+import net.corda.core.serialization.SingletonSerializeAsToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * This is the node service which appends every produced and consumed [IOUState] and [AddressState]
+ * to the [LedgerEventLog], so that analytics can read ledger events without polling vaultQuery over RPC.
+ * The log is configured with the following CorDapp config keys.
+ * - [eventLog.directory] The directory of the segment files. Defaults to "event-log".
+ * - [eventLog.segmentBytes] The size of one segment. Defaults to 64 MiB. Readers must use the same value.
+ * Events may be lost when the node stops between a vault commit and the append, or when an append fails.
+ * A RESYNC record is therefore written on every startup and before the first event appended after a failure,
+ * so consumers can see the gap and rebuild their view from the vault.
+ */
+@CordaService
+public class LedgerEventLogService extends SingletonSerializeAsToken {
+
+    private static final Logger logger = LoggerFactory.getLogger(LedgerEventLogService.class);
+
+    public static final String DEFAULT_DIRECTORY = "event-log";
+    public static final int DEFAULT_SEGMENT_BYTES = 64 * 1024 * 1024;
+
+    private final LedgerEventLog log;
+    private boolean resyncPending = true;
+
+    public LedgerEventLogService(AppServiceHub serviceHub) {
+        CordappConfig config = serviceHub.getAppContext().getConfig();
+        Path directory = Paths.get(config.exists("eventLog.directory")
+                ? config.getString("eventLog.directory") : DEFAULT_DIRECTORY);
+        int segmentBytes = config.exists("eventLog.segmentBytes")
+                ? config.getInt("eventLog.segmentBytes") : DEFAULT_SEGMENT_BYTES;
+        try {
+            this.log = new LedgerEventLog(directory, segmentBytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        appendResyncIfPending(System.currentTimeMillis());
+        serviceHub.getVaultService().getUpdates().subscribe(this::append);
+    }
+
+    /**
+     * Returns the offset the next event will be written at.
+     */
+    public long endOffset() {
+        return log.endOffset();
+    }
+
+    private synchronized void append(Vault.Update<ContractState> update) {
+        long recordedAt = System.currentTimeMillis();
+        if (!appendResyncIfPending(recordedAt)) {
+            return;
+        }
+        try {
+            // Consumed states are written first, so a reader never sees two live versions of one linearId.
+            for (StateAndRef<ContractState> consumed : update.getConsumed()) {
+                append(LedgerEventCodec.encode(LedgerEventCodec.CONSUMED, consumed, recordedAt));
+            }
+            for (StateAndRef<ContractState> produced : update.getProduced()) {
+                append(LedgerEventCodec.encode(LedgerEventCodec.PRODUCED, produced, recordedAt));
+            }
+        } catch (IOException | RuntimeException e) {
+            // Never let a failing append break the vault update subscription.
+            logger.error("Could not append vault update to the event log.", e);
+            resyncPending = true;
+        }
+    }
+
+    /**
+     * Writes the pending RESYNC record. Returns false when it could not be written, so the gap is still open.
+     */
+    private synchronized boolean appendResyncIfPending(long recordedAt) {
+        if (!resyncPending) {
+            return true;
+        }
+        try {
+            log.append(LedgerEventCodec.encodeResync(recordedAt));
+            resyncPending = false;
+            return true;
+        } catch (IOException | RuntimeException e) {
+            logger.error("Could not append resync marker to the event log.", e);
+            return false;
+        }
+    }
+
+    private void append(ByteBuffer body) throws IOException {
+        if (body != null) {
+            log.append(body);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package net.corda.training.services;
+
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.contracts.UniqueIdentifier;
+import net.corda.core.cordapp.CordappConfig;
+import net.corda.core.flows.FlowException;
+import net.corda.core.node.AppServiceHub;
+import net.corda.core.node.services.CordaService;
+import net.corda.core.serialization.SingletonSerializeAsToken;
+import net.corda.training.states.AddressState;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This is the node service which coalesces concurrent Move requests for the same [AddressState].
+ * - The first request for a linearId opens a batch and becomes its leader. Later requests join the batch
+ *   and only replace the address to move to.
+ * - After the window the leader closes the batch and moves the AddressState once to the latest address.
+ *   While the previous batch of the linearId is still running, the batch cannot be closed and keeps
+ *   accepting requests, so only one Move per linearId is ever in flight.
+ * - Every request of the batch then collects the leader's result.
+ * - Batches are kept in memory only. A request whose batch was lost, e.g. by a node restart, fails.
+ * The service is configured with the following CorDapp config keys.
+ * - [moveCoalescing.windowMillis] Defaults to 500 ms.
+ * - [moveCoalescing.timeoutMillis] How long a request waits for its batch, and after which a running batch
+ *   no longer blocks the linearId. Defaults to 2 minutes.
+ */
+@CordaService
+public class MoveCoalescingService extends SingletonSerializeAsToken {
+
+    public static final long DEFAULT_WINDOW_MILLIS = 500;
+    public static final long DEFAULT_TIMEOUT_MILLIS = 2 * 60 * 1000;
+
+    private final Duration window;
+    private final Duration timeout;
+    private final Map<UniqueIdentifier, Batch> open = new HashMap<>();
+    private final Map<UniqueIdentifier, Batch> running = new HashMap<>();
+    private final Map<Long, Batch> batches = new HashMap<>();
+    private long nextBatchId = 0;
+
+    public MoveCoalescingService(AppServiceHub serviceHub) {
+        CordappConfig config = serviceHub.getAppContext().getConfig();
+        this.window = Duration.ofMillis(config.exists("moveCoalescing.windowMillis")
+                ? config.getLong("moveCoalescing.windowMillis") : DEFAULT_WINDOW_MILLIS);
+        this.timeout = Duration.ofMillis(config.exists("moveCoalescing.timeoutMillis")
+                ? config.getLong("moveCoalescing.timeoutMillis") : DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    public Duration getWindow() { return window; }
+
+    public Duration getTimeout() { return timeout; }
+
+    /**
+     * Adds a Move request to the open batch of the linearId, or opens a new batch led by the caller.
+     */
+    public synchronized Ticket submit(UniqueIdentifier linearId, String address) {
+        Batch batch = open.get(linearId);
+        boolean leader = batch == null;
+        if (leader) {
+            batch = new Batch(nextBatchId++, linearId);
+            open.put(linearId, batch);
+            batches.put(batch.id, batch);
+        }
+        batch.address = address;
+        batch.waiters++;
+        return new Ticket(batch.id, leader);
+    }
+
+    /**
+     * Stops the batch from accepting requests and returns the latest address. Called by the leader.
+     * Returns null while the previous batch of the linearId is still running.
+     */
+    public synchronized String close(long batchId) throws FlowException {
+        Batch batch = batch(batchId);
+        Batch previous = running.get(batch.linearId);
+        if (previous != null && previous != batch && previous.startedAt.plus(timeout).isAfter(Instant.now())) {
+            return null;
+        }
+        open.remove(batch.linearId, batch);
+        running.put(batch.linearId, batch);
+        batch.startedAt = Instant.now();
+        return batch.address;
+    }
+
+    /**
+     * Records the result of the batch. Returns false when the batch has been lost.
+     */
+    public synchronized boolean complete(long batchId, StateAndRef<AddressState> result) {
+        Batch batch = batches.get(batchId);
+        if (batch == null) {
+            return false;
+        }
+        batch.result = result;
+        running.remove(batch.linearId, batch);
+        return true;
+    }
+
+    /**
+     * Records the failure of the batch. Returns false when the batch has been lost.
+     */
+    public synchronized boolean fail(long batchId, String error) {
+        Batch batch = batches.get(batchId);
+        if (batch == null) {
+            return false;
+        }
+        batch.error = error == null ? "Coalesced Move failed." : error;
+        open.remove(batch.linearId, batch);
+        running.remove(batch.linearId, batch);
+        return true;
+    }
+
+    /**
+     * Returns the result of the batch once the leader has finished it, or null while it is still running.
+     */
+    public synchronized StateAndRef<AddressState> collect(long batchId) throws FlowException {
+        Batch batch = batch(batchId);
+        if (batch.result == null && batch.error == null) {
+            return null;
+        }
+        leave(batchId);
+        if (batch.error != null) {
+            throw new FlowException(batch.error);
+        }
+        return batch.result;
+    }
+
+    /**
+     * Removes a request which stopped waiting for its batch.
+     */
+    public synchronized void leave(long batchId) {
+        Batch batch = batches.get(batchId);
+        if (batch != null && --batch.waiters == 0) {
+            batches.remove(batchId);
+        }
+    }
+
+    private Batch batch(long batchId) throws FlowException {
+        Batch batch = batches.get(batchId);
+        if (batch == null) {
+            throw new FlowException("The coalesced Move batch " + batchId + " was lost.");
+        }
+        return batch;
+    }
+
+    /**
+     * This is the handle a Move request keeps while its batch is running.
+     */
+    public static final class Ticket {
+        private final long batchId;
+        private final boolean leader;
+
+        private Ticket(long batchId, boolean leader) {
+            this.batchId = batchId;
+            this.leader = leader;
+        }
+
+        public long getBatchId() { return batchId; }
+
+        public boolean isLeader() { return leader; }
+    }
+
+    private static final class Batch {
+        private final long id;
+        private final UniqueIdentifier linearId;
+        private String address;
+        private int waiters = 0;
+        private Instant startedAt;
+        private StateAndRef<AddressState> result;
+        private String error;
+
+        private Batch(long id, UniqueIdentifier linearId) {
+            this.id = id;
+            this.linearId = linearId;
+        }
+    }
+}
@@ -3,21 +3,28 @@ package net.corda.training.flow;
 import co.paralleluniverse.fibers.Suspendable;
 import net.corda.core.contracts.Command;
 import net.corda.core.contracts.StateAndRef;
+import net.corda.core.contracts.UniqueIdentifier;
 import net.corda.core.flows.*;
 import net.corda.core.identity.Party;
 import net.corda.core.transactions.SignedTransaction;
 import net.corda.core.transactions.TransactionBuilder;
 import net.corda.core.utilities.ProgressTracker;
 import net.corda.training.contracts.AddressContract;
+import net.corda.training.services.MoveCoalescingService;
 import net.corda.training.states.AddressState;
 
+import java.time.Instant;
 import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * This is the flow which handles updating already published AddressState on the ledger.
  * Gathering the counterparty's signature is handled by the [CollectSignaturesFlow].
  * Notarisation (if required) and commitment to the ledger is handled by the [FinalityFlow].
  * The flow returns the [SignedTransaction] that was committed to the ledger.
+ * [Coalescing] applies only the latest of the Move requests arriving within a short window,
+ * which avoids double-spend conflicts at the notary and keeps the reference stable for IOU flows.
  */
 
 public class MoveFlow {
@@ -82,4 +89,85 @@ public class MoveFlow {
             ).getTx().outRefsOfType(AddressState.class).get(0);
         }
     }
+
+    /**
+     * This is the flow which queues a Move request in the [MoveCoalescingService].
+     * The first request of a window runs one [Initiator] with the latest address,
+     * and every request of the window returns its result.
+     */
+    @StartableByRPC
+    public static class Coalescing extends FlowLogic<StateAndRef<AddressState>>{
+        private final String address;
+
+        public Coalescing(String address){
+            this.address=address;
+        }
+
+        @Suspendable
+        @Override
+        public StateAndRef<AddressState> call() throws FlowException{
+            //1. Queue the request under the linearId of our AddressState.
+            MoveCoalescingService coalescer=getServiceHub().cordaService(MoveCoalescingService.class);
+            UniqueIdentifier linearId=ourAddressState().getState().getData().getLinearId();
+            MoveCoalescingService.Ticket ticket=coalescer.submit(linearId,address);
+
+            //2. The leader waits for the window to pass and for the previous batch of the linearId to finish,
+            //   then moves the AddressState to the latest address.
+            // A batch may queue behind the previous one, so a request waits for up to two runs.
+            Instant deadline=Instant.now().plus(coalescer.getTimeout().multipliedBy(2));
+            if(ticket.isLeader()){
+                String latestAddress=null;
+                while(latestAddress==null){
+                    sleep(coalescer.getWindow());
+                    latestAddress=coalescer.close(ticket.getBatchId());
+                    if(latestAddress==null && Instant.now().isAfter(deadline)){
+                        coalescer.fail(ticket.getBatchId(),"The previous Move of "+linearId+" did not finish in time.");
+                        break;
+                    }
+                }
+                if(latestAddress!=null){
+                    StateAndRef<AddressState> moved;
+                    try{
+                        StateAndRef<AddressState> current=ourAddressState();
+                        moved=current.getState().getData().getAddress().equals(latestAddress)
+                                ? current
+                                : subFlow(new Initiator(latestAddress));
+                    }catch(FlowException | RuntimeException e){
+                        if(!coalescer.fail(ticket.getBatchId(),e.getMessage())){
+                            throw e;
+                        }
+                        moved=null;
+                    }
+                    // The batch is lost when the node restarted while this flow was running.
+                    if(moved!=null && !coalescer.complete(ticket.getBatchId(),moved)){
+                        return moved;
+                    }
+                }
+            }
+
+            //3. Every request returns the result of its batch.
+            StateAndRef<AddressState> result=coalescer.collect(ticket.getBatchId());
+            while(result==null){
+                if(Instant.now().isAfter(deadline)){
+                    coalescer.leave(ticket.getBatchId());
+                    throw new FlowException("The coalesced Move of "+linearId+" did not finish in time.");
+                }
+                sleep(coalescer.getWindow());
+                result=coalescer.collect(ticket.getBatchId());
+            }
+            return result;
+        }
+
+        @Suspendable
+        private StateAndRef<AddressState> ourAddressState() throws FlowException{
+            List<StateAndRef<AddressState>> states=getServiceHub().getVaultService().queryBy(AddressState.class)
+                    .getStates().stream()
+                    .filter(state->state.getState().getData().getIssuer().equals(getOurIdentity()))
+                    .collect(Collectors.toList());
+            if(states.isEmpty()){
+                throw new FlowException("No AddressState has been published by this node.");
+            }
+            return states.get(0);
+        }
+    }
 }